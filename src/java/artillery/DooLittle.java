@@ -1,20 +1,31 @@
 package java.artillery;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
+import java.util.SplittableRandom;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.locks.LockSupport;
 
 @SuppressWarnings("deprecation")
 public class DooLittle {
 
+    // Schedules up to this many entries (16 MB) stay on the heap; open-ended runs wrap around one this long
+    private static final int MAX_HEAP_SCHEDULE_LENGTH = 1 << 22;
+    // Longer finite runs are memory-mapped from a temp file, up to a single 2 GB mapping
+    private static final int MAX_MAPPED_SCHEDULE_LENGTH = Integer.MAX_VALUE / Integer.BYTES;
+
     // ---- Virtual user profile ----
     static class VirtualUser {
         final String userAgent;
@@ -40,9 +51,9 @@ public class DooLittle {
 
     public static void main(String[] args) throws Exception {
         if (args.length < 1) {
-            System.err.println("Usage: java PolishedCannonV4 <baseUrl> [targetRps] [concurrency] [durationSeconds]");
-            System.err.println("Example: java PolishedCannonV4 http://localhost:8080 500 200 60");
-            System.err.println("         (500 RPS, 200 max concurrency, 60s)");
+            System.err.println("Usage: java PolishedCannonV4 <baseUrl> [targetRps] [concurrency] [durationSeconds] [seed]");
+            System.err.println("Example: java PolishedCannonV4 http://localhost:8080 500 200 60 42");
+            System.err.println("         (500 RPS, 200 max concurrency, 60s, same request sequence on every run with seed 42)");
             return;
         }
 
@@ -50,6 +61,7 @@ public class DooLittle {
         int targetRps        = args.length > 1 ? Integer.parseInt(args[1]) : 500;   // desired requests per second
         int concurrency      = args.length > 2 ? Integer.parseInt(args[2]) : 200;   // max in-flight requests
         long durationSeconds = args.length > 3 ? Long.parseLong(args[3]) : 0L;      // 0 or negative = run until Ctrl+C
+        long seed            = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime(); // reuse to replay a run
 
         if (baseUrl.endsWith("/")) {
             baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
@@ -59,10 +71,13 @@ public class DooLittle {
         System.out.println("Target RPS:        " + targetRps);
         System.out.println("Max concurrency:   " + concurrency);
         System.out.println("Duration seconds:  " + (durationSeconds <= 0 ? "infinite (Ctrl+C to stop)" : durationSeconds));
-        System.out.println();
+        System.out.println("Seed:              " + seed);
+
+        // Independent streams so the user pool and the schedule don't shift each other
+        SplittableRandom rng = new SplittableRandom(seed);
 
         // ---- Virtual users ----
-        VirtualUser[] users = buildVirtualUsers(100);
+        VirtualUser[] users = buildVirtualUsers(100, rng.split());
 
         // Paths to simulate HTML, static assets, and “clicks”
         final String[] HTML_PAGES = {"/", "/Default/Ar", "/index", "/dashboard","/admin","/lil-doo"};
@@ -88,6 +103,29 @@ public class DooLittle {
                 "text/html,application/xhtml+xml,application/xml;q=0.9," +
                         "image/avif,image/webp,image/apng,*/*;q=0.8";
 
+        // ---- Precomputed requests and schedule ----
+        // Every (user, path) request is built once; the fire loop just walks the schedule
+        RequestSpec[] catalog = buildCatalog(HTML_PAGES, STATIC_ASSETS, CLICK_PATHS);
+        HttpRequest[] requests = buildRequests(baseUrl, users, catalog, BASE_ACCEPT);
+
+        // Finite runs get one entry per request the fire loop can send, so the sequence never repeats;
+        // sized from the truncated interval the loop paces with, not from targetRps
+        long intervalNanos = (long) (1_000_000_000L / (double) targetRps);
+        long plannedRequests = durationSeconds > 0
+                ? durationSeconds * 1_000_000_000L / intervalNanos + 1
+                : MAX_HEAP_SCHEDULE_LENGTH;
+        int scheduleLength = (int) Math.min(plannedRequests, MAX_MAPPED_SCHEDULE_LENGTH);
+        boolean mapped = scheduleLength > MAX_HEAP_SCHEDULE_LENGTH;
+        IntBuffer schedule = mapped ? mapSchedule(scheduleLength) : IntBuffer.wrap(new int[scheduleLength]);
+        fillSchedule(rng.split(), schedule,
+                users.length, HTML_PAGES.length, STATIC_ASSETS.length, CLICK_PATHS.length);
+        int scheduleIdx = 0;
+
+        System.out.println("Schedule:          " + scheduleLength + " requests"
+                + (mapped ? " (memory-mapped)" : "")
+                + (scheduleLength < plannedRequests || durationSeconds <= 0 ? ", wraps around" : ""));
+        System.out.println();
+
         // ---- HttpClient with bounded thread pool ----
         ExecutorService executor = Executors.newFixedThreadPool(concurrency, r -> {
             Thread t = new Thread(r);
@@ -130,7 +168,6 @@ public class DooLittle {
         statsThread.start();
 
         // ---- Main fire loop ----
-        long intervalNanos = (long) (1_000_000_000L / (double) targetRps);
         long nextFire = System.nanoTime();
 
         outer:
@@ -158,22 +195,11 @@ public class DooLittle {
             // Acquire a slot for concurrency
             inFlightLimiter.acquire();
 
-            // Pick virtual user + path
-            VirtualUser vu = users[ThreadLocalRandom.current().nextInt(users.length)];
-            RequestSpec spec = pickRequestSpec(HTML_PAGES, STATIC_ASSETS, CLICK_PATHS);
-            String finalAccept = spec.acceptOverride != null ? spec.acceptOverride : BASE_ACCEPT;
-
-            String path = spec.path;
-            URI uri = URI.create(baseUrl + path);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(uri)
-                    .GET()
-                    .header("User-Agent", vu.userAgent)
-                    .header("Accept", finalAccept)
-                    .header("Accept-Language", vu.acceptLanguage)
-                    .header("X-Forwarded-For", vu.xForwardedFor)
-                    .build();
+            // Next virtual user + path from the schedule
+            HttpRequest request = requests[schedule.get(scheduleIdx)];
+            if (++scheduleIdx == scheduleLength) {
+                scheduleIdx = 0;
+            }
 
             totalSent.incrementAndGet();
 
@@ -217,7 +243,7 @@ public class DooLittle {
 
     // ---- Helpers ----
 
-    private static VirtualUser[] buildVirtualUsers(int count) {
+    private static VirtualUser[] buildVirtualUsers(int count, SplittableRandom rng) {
         String[] userAgents = {
                 "Mozilla/5.0 (Windows NT 10.0; Win64; x64) " +
                         "AppleWebKit/537.36 (KHTML, like Gecko) " +
@@ -245,10 +271,10 @@ public class DooLittle {
         VirtualUser[] users = new VirtualUser[count];
 
         for (int i = 0; i < count; i++) {
-            String ua   = userAgents[ThreadLocalRandom.current().nextInt(userAgents.length)];
-            String lang = acceptLangs[ThreadLocalRandom.current().nextInt(acceptLangs.length)];
+            String ua   = userAgents[rng.nextInt(userAgents.length)];
+            String lang = acceptLangs[rng.nextInt(acceptLangs.length)];
 
-            int lastOctet = 10 + ThreadLocalRandom.current().nextInt(200);
+            int lastOctet = 10 + rng.nextInt(200);
             String xff = "198.51.100." + lastOctet; // test range
 
             users[i] = new VirtualUser(ua, lang, xff);
@@ -257,39 +283,97 @@ public class DooLittle {
         return users;
     }
 
-    private static RequestSpec pickRequestSpec(String[] htmlPages,
-                                               String[] staticAssets,
-                                               String[] clickPaths) {
-        double r = ThreadLocalRandom.current().nextDouble();
-
-        if (r < 0.4) {
-            String path = randomFrom(htmlPages);
-            return new RequestSpec(path, null);
-        } else if (r < 0.8) {
-            String path = randomFrom(staticAssets);
-            String acceptOverride;
-
-            if (path.endsWith(".css")) {
-                acceptOverride = "text/css,*/*;q=0.1";
-            } else if (path.endsWith(".js")) {
-                acceptOverride = "*/*";
-            } else if (path.matches(".*\\.(png|jpg|jpeg|webp)$")) {
-                acceptOverride = "image/avif,image/webp,image/apng,image/png,*/*;q=0.8";
-            } else if (path.endsWith(".woff2")) {
-                acceptOverride = "*/*";
+    private static RequestSpec[] buildCatalog(String[] htmlPages,
+                                              String[] staticAssets,
+                                              String[] clickPaths) {
+        RequestSpec[] catalog = new RequestSpec[htmlPages.length + staticAssets.length + clickPaths.length];
+        int i = 0;
+        for (String path : htmlPages) {
+            catalog[i++] = new RequestSpec(path, null);
+        }
+        for (String path : staticAssets) {
+            catalog[i++] = new RequestSpec(path, acceptOverrideFor(path));
+        }
+        for (String path : clickPaths) {
+            catalog[i++] = new RequestSpec(path, null);
+        }
+        return catalog;
+    }
+
+    private static String acceptOverrideFor(String path) {
+        if (path.endsWith(".css")) {
+            return "text/css,*/*;q=0.1";
+        } else if (path.endsWith(".js")) {
+            return "*/*";
+        } else if (path.matches(".*\\.(png|jpg|jpeg|webp)$")) {
+            return "image/avif,image/webp,image/apng,image/png,*/*;q=0.8";
+        } else if (path.endsWith(".woff2")) {
+            return "*/*";
+        }
+        return null;
+    }
+
+    // Indexed by user * catalog.length + spec
+    private static HttpRequest[] buildRequests(String baseUrl,
+                                               VirtualUser[] users,
+                                               RequestSpec[] catalog,
+                                               String baseAccept) {
+        HttpRequest[] requests = new HttpRequest[users.length * catalog.length];
+        for (int u = 0; u < users.length; u++) {
+            VirtualUser vu = users[u];
+            for (int s = 0; s < catalog.length; s++) {
+                RequestSpec spec = catalog[s];
+                String finalAccept = spec.acceptOverride != null ? spec.acceptOverride : baseAccept;
+
+                requests[u * catalog.length + s] = HttpRequest.newBuilder()
+                        .uri(URI.create(baseUrl + spec.path))
+                        .GET()
+                        .header("User-Agent", vu.userAgent)
+                        .header("Accept", finalAccept)
+                        .header("Accept-Language", vu.acceptLanguage)
+                        .header("X-Forwarded-For", vu.xForwardedFor)
+                        .build();
+            }
+        }
+        return requests;
+    }
+
+    // 40% HTML, 40% static assets, 20% clicks; entries index into buildRequests()
+    private static void fillSchedule(SplittableRandom rng,
+                                     IntBuffer schedule,
+                                     int userCount,
+                                     int htmlCount,
+                                     int staticCount,
+                                     int clickCount) {
+        int catalogSize = htmlCount + staticCount + clickCount;
+        int length = schedule.capacity();
+
+        for (int i = 0; i < length; i++) {
+            int user = rng.nextInt(userCount);
+            double r = rng.nextDouble();
+            int spec;
+
+            if (r < 0.4) {
+                spec = rng.nextInt(htmlCount);
+            } else if (r < 0.8) {
+                spec = htmlCount + rng.nextInt(staticCount);
             } else {
-                acceptOverride = null;
+                spec = htmlCount + staticCount + rng.nextInt(clickCount);
             }
 
-            return new RequestSpec(path, acceptOverride);
-        } else {
-            String path = randomFrom(clickPaths);
-            return new RequestSpec(path, null);
+            schedule.put(i, user * catalogSize + spec);
         }
     }
 
-    private static String randomFrom(String[] arr) {
-        return arr[ThreadLocalRandom.current().nextInt(arr.length)];
+    private static IntBuffer mapSchedule(int length) throws IOException {
+        Path file = Files.createTempFile("doolittle-schedule", ".bin");
+        file.toFile().deleteOnExit();
+
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) length * Integer.BYTES).asIntBuffer();
+        }
     }
 
     private static void printStats(Instant start,
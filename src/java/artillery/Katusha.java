@@ -11,13 +11,71 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 public class Katusha {
 
+    // Offered rates as multiples of the configured limit: below, at, and above it
+    private static final double[] RATE_MULTIPLIERS = {0.5, 0.8, 1.0, 1.2, 1.5, 2.0};
+
+    // ---- Result of one offered-rate step ----
+    private static class StepResult {
+        final double multiplier;
+        final int offeredRps;
+        final int sent;
+        final long skippedSlots;        // fire slots dropped while blocked on concurrency
+        final double elapsedSeconds;
+        final int accepted;
+        final int limited;
+        final int other;                // neither 2xx nor 429
+        final int exceptions;
+        final Map<Integer, AtomicInteger> statusCounts;
+        final long first429Request;     // lowest request number answered 429, -1 if none
+        final long first429Millis;      // send time of that request, -1 if none
+        final int burst;                // accepted before the first 429
+        final double steadyAcceptedRps; // accepted/s from the first 429 on, NaN if none
+        final int[] steadyPerSecond;    // accepted per whole second from the first 429 on
+        final long[] acceptedLatencies; // nanos, sorted
+        final long[] limitedLatencies;  // nanos, sorted
+
+        StepResult(double multiplier, int offeredRps, int sent, long skippedSlots, double elapsedSeconds,
+                   int accepted, int limited, int other, int exceptions,
+                   Map<Integer, AtomicInteger> statusCounts, long first429Request, long first429Millis,
+                   int burst, double steadyAcceptedRps, int[] steadyPerSecond,
+                   long[] acceptedLatencies, long[] limitedLatencies) {
+            this.multiplier = multiplier;
+            this.offeredRps = offeredRps;
+            this.sent = sent;
+            this.skippedSlots = skippedSlots;
+            this.elapsedSeconds = elapsedSeconds;
+            this.accepted = accepted;
+            this.limited = limited;
+            this.other = other;
+            this.exceptions = exceptions;
+            this.statusCounts = statusCounts;
+            this.first429Request = first429Request;
+            this.first429Millis = first429Millis;
+            this.burst = burst;
+            this.steadyAcceptedRps = steadyAcceptedRps;
+            this.steadyPerSecond = steadyPerSecond;
+            this.acceptedLatencies = acceptedLatencies;
+            this.limitedLatencies = limitedLatencies;
+        }
+
+        boolean saturated() {
+            return first429Request >= 0;
+        }
+    }
+
     public static void main(String[] args) throws Exception {
         String url = args.length > 0 ? args[0] : "http://localhost:8080/";
         int totalRequests = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
         int concurrency   = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int limitRps      = args.length > 3 ? Integer.parseInt(args[3]) : 0;   // > 0 = characterization mode
+        int stepSeconds   = args.length > 4 ? Integer.parseInt(args[4]) : 10;  // time spent at each offered rate
+        int cooldownSeconds = args.length > 5 ? Integer.parseInt(args[5]) : Math.max(1, stepSeconds / 2);
+        String controlUrl = args.length > 6 ? args[6] : null; // same endpoint with the limiter bypassed
         String userId = "user-" + (10 % 100000);
         HttpClient client = HttpClient.newBuilder()
                 .version(HttpClient.Version.HTTP_1_1)
@@ -30,6 +88,18 @@ public class Katusha {
                 .GET()
                 .build();
 
+        if (limitRps > 0) {
+            // totalRequests is ignored here: each step runs for stepSeconds at its offered rate
+            HttpRequest control = controlUrl == null ? null : HttpRequest.newBuilder()
+                    .uri(URI.create(controlUrl))
+                    .header("X-User-Id", userId)
+                    .GET()
+                    .build();
+            characterize(client, request, control, url, controlUrl,
+                    limitRps, concurrency, stepSeconds, cooldownSeconds);
+            return;
+        }
+
         Semaphore semaphore = new Semaphore(concurrency);
         List<CompletableFuture<Void>> futures = new ArrayList<>();
 
@@ -99,5 +169,293 @@ public class Katusha {
                         System.out.println(e.getKey() + " -> " + e.getValue().get())
                 );
     }
-}
 
+    // ---- Rate-limiter characterization ----
+
+    private static void characterize(HttpClient client, HttpRequest request, HttpRequest control,
+                                     String url, String controlUrl, int limitRps, int concurrency,
+                                     int stepSeconds, int cooldownSeconds) throws Exception {
+        // Assumes the limiter fully refills while idle for cooldownSeconds (burst / limit for a
+        // token bucket, one window for a window limiter); raise it if the burst is larger
+        long cooldownMillis = cooldownSeconds * 1000L;
+
+        System.out.println("URL:              " + url);
+        System.out.println("Control URL:      " + (controlUrl == null ? "none (latency drift only)" : controlUrl));
+        System.out.println("Configured limit: " + limitRps + " req/s");
+        System.out.println("Step duration:    " + stepSeconds + " s");
+        System.out.println("Max concurrency:  " + concurrency);
+        System.out.println("Cooldown:         " + cooldownSeconds + " s");
+        System.out.println();
+
+        // Warm up connections and JIT below the limit; results discarded
+        int warmupRps = Math.max(1, (int) Math.round(limitRps * RATE_MULTIPLIERS[0]));
+        runStep(client, request, RATE_MULTIPLIERS[0], warmupRps, concurrency, Math.min(stepSeconds, 2));
+        if (control != null) {
+            runStep(client, control, RATE_MULTIPLIERS[0], warmupRps, concurrency, Math.min(stepSeconds, 2));
+        }
+        Thread.sleep(cooldownMillis);
+
+        List<StepResult> results = new ArrayList<>();
+        List<StepResult> controls = new ArrayList<>();
+        for (double m : RATE_MULTIPLIERS) {
+            int offeredRps = Math.max(1, (int) Math.round(limitRps * m));
+            System.out.printf("Offering %d req/s (%.1fx limit) for %d s...%n", offeredRps, m, stepSeconds);
+            results.add(runStep(client, request, m, offeredRps, concurrency, stepSeconds));
+            Thread.sleep(cooldownMillis);
+
+            if (control != null) {
+                // Same rate and shape against the bypass, so the latency difference is the limiter's
+                controls.add(runStep(client, control, m, offeredRps, concurrency, stepSeconds));
+                Thread.sleep(cooldownMillis);
+            }
+        }
+
+        printCharacterization(results, controls, limitRps);
+    }
+
+    private static StepResult runStep(HttpClient client, HttpRequest request, double multiplier,
+                                      int offeredRps, int concurrency, int stepSeconds) throws Exception {
+        Semaphore semaphore = new Semaphore(concurrency);
+
+        // Per-request outcome indexed by request number - 1. Each slot is written by a single
+        // callback and read only after every permit is back, which publishes the writes.
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, (long) offeredRps * stepSeconds + 2);
+        long[] sendOffsets = new long[capacity]; // nanos since step start
+        long[] latencies   = new long[capacity];
+        int[]  codes       = new int[capacity];  // 0 = exception
+
+        AtomicInteger exceptions = new AtomicInteger();
+        AtomicLong first429Index = new AtomicLong(Long.MAX_VALUE);
+        Map<Integer, AtomicInteger> statusCounts = new ConcurrentHashMap<>();
+
+        long intervalNanos = (long) (1_000_000_000L / (double) offeredRps);
+        long stepNanos = stepSeconds * 1_000_000_000L;
+        long startNano = System.nanoTime();
+        long nextFire = startNano;
+        long skippedSlots = 0;
+        int sent = 0;
+
+        while (sent < capacity) {
+            long now = System.nanoTime();
+            if (now - startNano >= stepNanos) {
+                break;
+            }
+            if (now < nextFire) {
+                LockSupport.parkNanos(nextFire - now);
+                continue;
+            }
+
+            // Fell behind (blocked on the semaphore): drop the missed slots instead of firing
+            // them back-to-back, which the limiter would see as a burst
+            long behind = now - nextFire;
+            if (behind > intervalNanos) {
+                skippedSlots += behind / intervalNanos;
+                nextFire = now;
+            }
+            nextFire += intervalNanos;
+
+            semaphore.acquire();
+
+            final int idx = sent++;
+            final long sendNano = System.nanoTime();
+            sendOffsets[idx] = sendNano - startNano;
+
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((resp, throwable) -> {
+                        try {
+                            latencies[idx] = System.nanoTime() - sendNano;
+                            if (throwable != null) {
+                                exceptions.incrementAndGet();
+                                return;
+                            }
+                            int code = resp.statusCode();
+                            codes[idx] = code;
+                            statusCounts
+                                    .computeIfAbsent(code, k -> new AtomicInteger())
+                                    .incrementAndGet();
+                            if (code == 429) {
+                                // Completions arrive out of order; keep the earliest request sent
+                                first429Index.accumulateAndGet(idx, Math::min);
+                            }
+                        } finally {
+                            semaphore.release();
+                        }
+                    });
+        }
+
+        long elapsedNanos = System.nanoTime() - startNano;
+
+        // Wait for in-flight requests so their results land in this step
+        semaphore.acquire(concurrency);
+        semaphore.release(concurrency);
+
+        long first = first429Index.get();
+        boolean saturated = first != Long.MAX_VALUE;
+        long first429Offset = saturated ? sendOffsets[(int) first] : -1;
+        int steadySeconds = saturated ? (int) ((elapsedNanos - first429Offset) / 1_000_000_000L) : 0;
+        int[] steadyPerSecond = new int[steadySeconds];
+
+        long[] acceptedLatencies = new long[sent];
+        long[] limitedLatencies  = new long[sent];
+        int accepted = 0;
+        int limited = 0;
+        int other = 0;
+        int burst = 0;
+        int steadyAccepted = 0;
+
+        for (int i = 0; i < sent; i++) {
+            int code = codes[i];
+            if (code == 0) {
+                continue;
+            }
+            if (code / 100 == 2) {
+                acceptedLatencies[accepted++] = latencies[i];
+                if (!saturated || i < first) {
+                    burst++;
+                } else {
+                    steadyAccepted++;
+                    int second = (int) ((sendOffsets[i] - first429Offset) / 1_000_000_000L);
+                    if (second < steadySeconds) {
+                        steadyPerSecond[second]++;
+                    }
+                }
+            } else if (code == 429) {
+                limitedLatencies[limited++] = latencies[i];
+            } else {
+                other++;
+            }
+        }
+
+        double steadyAcceptedRps = saturated
+                ? steadyAccepted / ((elapsedNanos - first429Offset) / 1_000_000_000.0)
+                : Double.NaN;
+
+        return new StepResult(multiplier, offeredRps, sent, skippedSlots, elapsedNanos / 1_000_000_000.0,
+                accepted, limited, other, exceptions.get(), statusCounts,
+                saturated ? first + 1 : -1, saturated ? first429Offset / 1_000_000L : -1,
+                saturated ? burst : 0, steadyAcceptedRps, steadyPerSecond,
+                sorted(acceptedLatencies, accepted), sorted(limitedLatencies, limited));
+    }
+
+    private static void printCharacterization(List<StepResult> results, List<StepResult> controls, int limitRps) {
+        System.out.println();
+        System.out.println("---- Rate limiter characterization (limit " + limitRps + " req/s) ----");
+        System.out.println("Burst = accepted before the first 429; steady rate is measured from the first 429 on.");
+        System.out.printf("%4s  %7s  %6s  %7s  %5s  %5s  %20s  %5s  %9s  %8s%n",
+                "x", "offered", "actual", "skipped", "429s", "other", "first 429 (req @ ms)",
+                "burst", "steady/s", "vs quota");
+        for (StepResult r : results) {
+            double actualRps = r.sent / r.elapsedSeconds;
+            if (r.saturated()) {
+                // Same guard as the refill section: less than a whole second after the first 429
+                // is too short a window for a rate
+                boolean hasWindow = r.steadyPerSecond.length > 0;
+                System.out.printf("%4.1f  %7d  %6.1f  %7d  %5d  %5d  %20s  %5d  %9s  %8s%n",
+                        r.multiplier, r.offeredRps, actualRps, r.skippedSlots, r.limited, r.other,
+                        r.first429Request + " @ " + r.first429Millis, r.burst,
+                        hasWindow ? String.format("%.1f", r.steadyAcceptedRps) : "-",
+                        hasWindow ? String.format("%.1f%%", r.steadyAcceptedRps * 100.0 / limitRps) : "-");
+            } else {
+                System.out.printf("%4.1f  %7d  %6.1f  %7d  %5d  %5d  %20s  %5s  %9s  %8s%n",
+                        r.multiplier, r.offeredRps, actualRps, r.skippedSlots, r.limited, r.other,
+                        "-", "-", "-", "-");
+            }
+        }
+
+        System.out.println();
+        if (controls.isEmpty()) {
+            // Without a bypass the limiter is in the path at every rate, so this is drift, not overhead
+            StepResult baseline = results.get(0);
+            double baseP50 = percentileMillis(baseline.acceptedLatencies, 50);
+            double baseP99 = percentileMillis(baseline.acceptedLatencies, 99);
+
+            System.out.println("Accepted latency (no control URL: drift vs the " + baseline.multiplier
+                    + "x step is load-dependent, not limiter overhead):");
+            System.out.printf("%4s  %7s  %7s  %9s  %9s  %10s%n",
+                    "x", "p50 ms", "p99 ms", "drift p50", "drift p99", "429 p50 ms");
+            for (StepResult r : results) {
+                double p50 = percentileMillis(r.acceptedLatencies, 50);
+                double p99 = percentileMillis(r.acceptedLatencies, 99);
+                System.out.printf("%4.1f  %7.2f  %7.2f  %+9.2f  %+9.2f  %10s%n",
+                        r.multiplier, p50, p99, p50 - baseP50, p99 - baseP99, limitedP50(r));
+            }
+        } else {
+            System.out.println("Limiter overhead on accepted requests (vs control URL at the same offered rate):");
+            System.out.printf("%4s  %7s  %7s  %7s  %7s  %11s  %11s  %10s%n",
+                    "x", "p50 ms", "p99 ms", "ctl p50", "ctl p99", "overhd p50", "overhd p99", "429 p50 ms");
+            for (int i = 0; i < results.size(); i++) {
+                StepResult r = results.get(i);
+                StepResult c = controls.get(i);
+                double p50 = percentileMillis(r.acceptedLatencies, 50);
+                double p99 = percentileMillis(r.acceptedLatencies, 99);
+                double ctlP50 = percentileMillis(c.acceptedLatencies, 50);
+                double ctlP99 = percentileMillis(c.acceptedLatencies, 99);
+                System.out.printf("%4.1f  %7.2f  %7.2f  %7.2f  %7.2f  %+11.2f  %+11.2f  %10s%n",
+                        r.multiplier, p50, p99, ctlP50, ctlP99, p50 - ctlP50, p99 - ctlP99, limitedP50(r));
+                if (c.accepted != c.sent) {
+                    System.out.println("      warning: control step had " + (c.sent - c.accepted)
+                            + " non-2xx responses or exceptions; is the limiter really bypassed?");
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.println("Refill accuracy (accepted per whole second from the first 429 on):");
+        for (StepResult r : results) {
+            if (!r.saturated()) {
+                System.out.printf("  %.1fx: no saturation%n", r.multiplier);
+                continue;
+            }
+            if (r.steadyPerSecond.length == 0) {
+                System.out.printf("  %.1fx: first 429 too late in the step for a whole second of data%n", r.multiplier);
+                continue;
+            }
+            double sumAbsErr = 0;
+            int min = Integer.MAX_VALUE;
+            int max = 0;
+            for (int n : r.steadyPerSecond) {
+                sumAbsErr += Math.abs(n - limitRps);
+                min = Math.min(min, n);
+                max = Math.max(max, n);
+            }
+            System.out.printf("  %.1fx: %s%n", r.multiplier, Arrays.toString(r.steadyPerSecond));
+            System.out.printf("        min %d, max %d, mean abs error %.1f%% of quota%n",
+                    min, max, sumAbsErr * 100.0 / r.steadyPerSecond.length / limitRps);
+        }
+
+        System.out.println();
+        System.out.println("Status code breakdown:");
+        for (StepResult r : results) {
+            StringBuilder line = new StringBuilder(String.format("  %.1fx:", r.multiplier));
+            r.statusCounts.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .forEach(e -> line.append(' ').append(e.getKey()).append(" -> ").append(e.getValue().get()));
+            if (r.exceptions > 0) {
+                line.append(" exceptions -> ").append(r.exceptions);
+            }
+            System.out.println(line);
+        }
+    }
+
+    // "-" rather than 0.00 when the step saw no 429s
+    private static String limitedP50(StepResult r) {
+        return r.limitedLatencies.length == 0
+                ? "-"
+                : String.format("%.2f", percentileMillis(r.limitedLatencies, 50));
+    }
+
+    private static long[] sorted(long[] values, int count) {
+        long[] out = Arrays.copyOf(values, count);
+        Arrays.sort(out);
+        return out;
+    }
+
+    private static double percentileMillis(long[] sortedNanos, int percentile) {
+        if (sortedNanos.length == 0) {
+            return 0.0;
+        }
+        int idx = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        idx = Math.max(0, Math.min(idx, sortedNanos.length - 1));
+        return sortedNanos[idx] / 1_000_000.0;
+    }
+}
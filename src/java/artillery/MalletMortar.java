@@ -9,10 +9,10 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class MalletMortar {
@@ -45,13 +45,20 @@ public class MalletMortar {
         String baseUrl    = args.length > 0 ? args[0] : "http://localhost:8080";
         int totalRequests = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
         int concurrency   = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        long seed         = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime(); // reuse to replay a run
 
         if (baseUrl.endsWith("/")) {
             baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
         }
 
+        // Printed up front so a killed or hung run can still be replayed
+        System.out.println("Seed:         " + seed);
+
+        // Independent streams so the user pool and the schedule don't shift each other
+        SplittableRandom rng = new SplittableRandom(seed);
+
         // ---- Build a small pool of “realistic” virtual users ----
-        VirtualUser[] users = buildVirtualUsers(100);
+        VirtualUser[] users = buildVirtualUsers(100, rng.split());
 
         // Base Accept header for HTML-ish requests
         final String BASE_ACCEPT =
@@ -80,6 +87,12 @@ public class MalletMortar {
                 "/help"
         };
 
+        // ---- Precompute every (user, path) request and the full request sequence ----
+        RequestSpec[] catalog = buildCatalog(HTML_PAGES, STATIC_ASSETS, CLICK_PATHS);
+        HttpRequest[] requests = buildRequests(baseUrl, users, catalog, BASE_ACCEPT);
+        int[] schedule = buildSchedule(rng.split(), totalRequests,
+                users.length, HTML_PAGES.length, STATIC_ASSETS.length, CLICK_PATHS.length);
+
         HttpClient client = HttpClient.newBuilder()
                 .version(HttpClient.Version.HTTP_1_1)
                 .connectTimeout(Duration.ofSeconds(5))
@@ -100,20 +113,8 @@ public class MalletMortar {
         for (int i = 0; i < totalRequests; i++) {
             semaphore.acquire();
 
-            // Pick a random virtual user (different fingerprints)
-            VirtualUser vu = users[ThreadLocalRandom.current().nextInt(users.length)];
-            RequestSpec spec = pickRequestSpec(HTML_PAGES, STATIC_ASSETS, CLICK_PATHS);
-
-            String finalAccept = spec.acceptOverride != null ? spec.acceptOverride : BASE_ACCEPT;
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(baseUrl + spec.path))
-                    .GET()
-                    .header("User-Agent", vu.userAgent)
-                    .header("Accept", finalAccept)
-                    .header("Accept-Language", vu.acceptLanguage)
-                    .header("X-Forwarded-For", vu.xForwardedFor)
-                    .build();
+            // Scheduled virtual user (different fingerprints) + path
+            HttpRequest request = requests[schedule[i]];
 
             CompletableFuture<Void> f = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
                     .thenAccept(resp -> {
@@ -171,7 +172,7 @@ public class MalletMortar {
                 );
     }
 
-    private static VirtualUser[] buildVirtualUsers(int count) {
+    private static VirtualUser[] buildVirtualUsers(int count, SplittableRandom rng) {
         String[] userAgents = {
                 "Mozilla/5.0 (Windows NT 10.0; Win64; x64) " +
                         "AppleWebKit/537.36 (KHTML, like Gecko) " +
@@ -199,11 +200,11 @@ public class MalletMortar {
         VirtualUser[] users = new VirtualUser[count];
 
         for (int i = 0; i < count; i++) {
-            String ua  = userAgents[ThreadLocalRandom.current().nextInt(userAgents.length)];
-            String lang = acceptLangs[ThreadLocalRandom.current().nextInt(acceptLangs.length)];
+            String ua  = userAgents[rng.nextInt(userAgents.length)];
+            String lang = acceptLangs[rng.nextInt(acceptLangs.length)];
 
             // Fake X-Forwarded-For in some 198.51.100.0/24 test block
-            int lastOctet = 10 + ThreadLocalRandom.current().nextInt(200);
+            int lastOctet = 10 + rng.nextInt(200);
             String xff = "198.51.100." + lastOctet; // still all same /24
 
             users[i] = new VirtualUser(ua, lang, xff);
@@ -212,43 +213,87 @@ public class MalletMortar {
         return users;
     }
 
-    private static RequestSpec pickRequestSpec(String[] htmlPages,
-                                               String[] staticAssets,
-                                               String[] clickPaths) {
-        double r = ThreadLocalRandom.current().nextDouble();
-
-        if (r < 0.4) {
-            // 40% HTML
-            String path = randomFrom(htmlPages);
-            return new RequestSpec(path, null);
-        } else if (r < 0.8) {
-            // 40% static assets
-            String path = randomFrom(staticAssets);
-            String acceptOverride;
-
-            if (path.endsWith(".css")) {
-                acceptOverride = "text/css,*/*;q=0.1";
-            } else if (path.endsWith(".js")) {
-                acceptOverride = "*/*";
-            } else if (path.matches(".*\\.(png|jpg|jpeg|webp)$")) {
-                acceptOverride = "image/avif,image/webp,image/apng,image/png,*/*;q=0.8";
-            } else if (path.endsWith(".woff2")) {
-                acceptOverride = "*/*";
-            } else {
-                acceptOverride = null;
-            }
+    private static RequestSpec[] buildCatalog(String[] htmlPages,
+                                              String[] staticAssets,
+                                              String[] clickPaths) {
+        RequestSpec[] catalog = new RequestSpec[htmlPages.length + staticAssets.length + clickPaths.length];
+        int i = 0;
+        for (String path : htmlPages) {
+            catalog[i++] = new RequestSpec(path, null);
+        }
+        for (String path : staticAssets) {
+            catalog[i++] = new RequestSpec(path, acceptOverrideFor(path));
+        }
+        for (String path : clickPaths) {
+            catalog[i++] = new RequestSpec(path, null);
+        }
+        return catalog;
+    }
 
-            return new RequestSpec(path, acceptOverride);
-        } else {
-            // 20% “clicky“ / API
-            String path = randomFrom(clickPaths);
-            return new RequestSpec(path, null);
+    private static String acceptOverrideFor(String path) {
+        if (path.endsWith(".css")) {
+            return "text/css,*/*;q=0.1";
+        } else if (path.endsWith(".js")) {
+            return "*/*";
+        } else if (path.matches(".*\\.(png|jpg|jpeg|webp)$")) {
+            return "image/avif,image/webp,image/apng,image/png,*/*;q=0.8";
+        } else if (path.endsWith(".woff2")) {
+            return "*/*";
         }
+        return null;
     }
 
-    private static String randomFrom(String[] arr) {
-        return arr[ThreadLocalRandom.current().nextInt(arr.length)];
+    // Indexed by user * catalog.length + spec
+    private static HttpRequest[] buildRequests(String baseUrl,
+                                               VirtualUser[] users,
+                                               RequestSpec[] catalog,
+                                               String baseAccept) {
+        HttpRequest[] requests = new HttpRequest[users.length * catalog.length];
+        for (int u = 0; u < users.length; u++) {
+            VirtualUser vu = users[u];
+            for (int s = 0; s < catalog.length; s++) {
+                RequestSpec spec = catalog[s];
+                String finalAccept = spec.acceptOverride != null ? spec.acceptOverride : baseAccept;
+
+                requests[u * catalog.length + s] = HttpRequest.newBuilder()
+                        .uri(URI.create(baseUrl + spec.path))
+                        .GET()
+                        .header("User-Agent", vu.userAgent)
+                        .header("Accept", finalAccept)
+                        .header("Accept-Language", vu.acceptLanguage)
+                        .header("X-Forwarded-For", vu.xForwardedFor)
+                        .build();
+            }
+        }
+        return requests;
     }
-}
 
+    // 40% HTML, 40% static assets, 20% clicks; entries index into buildRequests()
+    private static int[] buildSchedule(SplittableRandom rng,
+                                       int length,
+                                       int userCount,
+                                       int htmlCount,
+                                       int staticCount,
+                                       int clickCount) {
+        int catalogSize = htmlCount + staticCount + clickCount;
+        int[] schedule = new int[length];
+
+        for (int i = 0; i < length; i++) {
+            int user = rng.nextInt(userCount);
+            double r = rng.nextDouble();
+            int spec;
+
+            if (r < 0.4) {
+                spec = rng.nextInt(htmlCount);
+            } else if (r < 0.8) {
+                spec = htmlCount + rng.nextInt(staticCount);
+            } else {
+                spec = htmlCount + staticCount + rng.nextInt(clickCount);
+            }
+
+            schedule[i] = user * catalogSize + spec;
+        }
 
+        return schedule;
+    }
+}